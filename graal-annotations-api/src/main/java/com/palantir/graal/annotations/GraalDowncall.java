@@ -0,0 +1,52 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A marker that designates the labeled method performs a Foreign Function &amp; Memory API downcall which must be
+ * registered ahead of time in SubstrateVM, see
+ * https://www.graalvm.org/latest/reference-manual/native-image/native-code-interoperability/foreign-interface/.
+ * <p>
+ * By default the function descriptor is derived from the signature of the labeled method, where primitives map to
+ * the corresponding JNI type (e.g. {@code int} to {@code jint}) and {@code java.lang.foreign.MemorySegment} maps to
+ * {@code void*}. Use the following options to describe the native function explicitly, or to add linker options:
+ * <ul>
+ *     <li>{@link #returnType()} default derived: when set, {@link #parameterTypes()} is used as given</li>
+ *     <li>{@link #parameterTypes()} default derived: may only be set together with {@link #returnType()}</li>
+ *     <li>{@link #firstVariadicArg()} default none: the index of the first variadic argument</li>
+ *     <li>{@link #captureCallState()} default false: capture {@code errno} and similar state after the call</li>
+ * </ul>
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface GraalDowncall {
+    /** The native return type, e.g. {@code jint} or {@code void*}; derived from the method when empty. */
+    String returnType() default "";
+
+    /** The native parameter types; takes effect only when {@link #returnType()} is set. */
+    String[] parameterTypes() default {};
+
+    /** The index of the first variadic argument, or -1 when the function is not variadic. */
+    int firstVariadicArg() default -1;
+
+    boolean captureCallState() default false;
+}
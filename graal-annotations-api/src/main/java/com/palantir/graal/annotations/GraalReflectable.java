@@ -40,9 +40,21 @@ import java.lang.annotation.Target;
  * <ul>
  *     <li>{@link #allowWrite()} default false: allow writing the field despite its demarcation as final</li>
  * </ul>
+ * <p>
+ * When applied to a {@link ElementType#PACKAGE}, every class in the package is registered with the class options
+ * above, restricted by the following name patterns relative to the package, where {@code *} matches any sequence of
+ * characters:
+ * <ul>
+ *     <li>{@link #include()} default all classes</li>
+ *     <li>{@link #exclude()} default no classes</li>
+ * </ul>
+ * <p>
+ * When applied to an {@link ElementType#ANNOTATION_TYPE}, every class labeled with that annotation is registered with
+ * the class options above. A class labeled directly with {@code @GraalReflectable} always uses its own options, and
+ * annotation options take precedence over package options.
  */
-@Retention(RetentionPolicy.SOURCE)
-@Target({ElementType.TYPE, ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.METHOD})
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.TYPE, ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.METHOD, ElementType.PACKAGE})
 public @interface GraalReflectable {
     /** Takes effect only when applied to a {@link ElementType#TYPE}. */
     boolean allPublicConstructors() default true;
@@ -64,4 +76,10 @@ public @interface GraalReflectable {
 
     /** Takes effect only when applied to a {@link ElementType#FIELD}. */
     boolean allowWrite() default false;
+
+    /** Takes effect only when applied to a {@link ElementType#PACKAGE}. */
+    String[] include() default "*";
+
+    /** Takes effect only when applied to a {@link ElementType#PACKAGE}. */
+    String[] exclude() default {};
 }
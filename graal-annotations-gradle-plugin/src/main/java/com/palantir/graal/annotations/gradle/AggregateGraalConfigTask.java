@@ -0,0 +1,168 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.gradle;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Merges SubstrateVM configuration files emitted by the graal annotation processor in any number of projects. Files
+ * with the same name are merged into a single file of that name in {@link #getOutputDirectory()}: JSON arrays are
+ * concatenated, and JSON objects have the arrays under each of their keys concatenated. Every configuration file
+ * known to native-image is always written, empty if no project emitted it, so that {@link #getNativeImageArguments()}
+ * can be resolved before this task runs.
+ * <p>
+ * Foreign Function &amp; Memory API configuration is only passed to native-image when {@link #getForeignApiSupport()}
+ * is enabled, since native-image releases without FFM support reject its options.
+ */
+@CacheableTask
+public class AggregateGraalConfigTask extends DefaultTask {
+
+    static final String CONFIG_PATTERN = "META-INF/graal/*.json";
+
+    private static final String REFLECTION_CONFIG = "reflection-config.json";
+    private static final String FOREIGN_CONFIG = "foreign-config.json";
+    private static final Map<String, String> EMPTY_CONFIGS;
+
+    static {
+        Map<String, String> empty = new TreeMap<>();
+        empty.put(REFLECTION_CONFIG, "[ ]");
+        empty.put(FOREIGN_CONFIG, "{ }");
+        EMPTY_CONFIGS = Collections.unmodifiableMap(empty);
+    }
+
+    private final ConfigurableFileCollection configFiles = getProject().files();
+    private final DirectoryProperty outputDirectory = getProject().getObjects().directoryProperty();
+    private final Property<Boolean> foreignApiSupport = getProject().getObjects().property(Boolean.class);
+
+    public AggregateGraalConfigTask() {
+        foreignApiSupport.set(false);
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public ConfigurableFileCollection getConfigFiles() {
+        return configFiles;
+    }
+
+    @OutputDirectory
+    public DirectoryProperty getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Whether {@link #getNativeImageArguments()} enables Foreign Function &amp; Memory API support and passes the
+     * aggregated {@code @GraalDowncall} configuration, defaults to {@code false}.
+     */
+    @Internal
+    public Property<Boolean> getForeignApiSupport() {
+        return foreignApiSupport;
+    }
+
+    /**
+     * The native-image arguments that consume the aggregated configuration. The arguments may be resolved at any time,
+     * but the task consuming them must depend on this task.
+     */
+    @Internal
+    public Provider<List<String>> getNativeImageArguments() {
+        return getProject().provider(() -> {
+            File dir = outputDirectory.getAsFile().get();
+            List<String> arguments = new ArrayList<>();
+            if (foreignApiSupport.get()) {
+                arguments.add("-H:+ForeignAPISupport");
+                arguments.add("-H:ForeignConfigurationFiles=" + new File(dir, FOREIGN_CONFIG).getAbsolutePath());
+            }
+            arguments.add("-H:ReflectionConfigurationFiles=" + new File(dir, REFLECTION_CONFIG).getAbsolutePath());
+            return arguments;
+        });
+    }
+
+    @TaskAction
+    public void aggregate() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+
+        // sort inputs so that the output is identical regardless of project evaluation order
+        List<File> inputs = new ArrayList<>(configFiles.getFiles());
+        inputs.sort(Comparator.comparing(File::getAbsolutePath));
+
+        Map<String, JsonNode> merged = new TreeMap<>();
+        for (Map.Entry<String, String> entry : EMPTY_CONFIGS.entrySet()) {
+            merged.put(entry.getKey(), mapper.readTree(entry.getValue()));
+        }
+        for (File input : inputs) {
+            if (input.getName().equals(FOREIGN_CONFIG) && !foreignApiSupport.get()) {
+                getLogger().warn("Found @GraalDowncall configuration in {}, but foreignApiSupport is disabled so "
+                        + "it will not be passed to native-image", input);
+            }
+            JsonNode contents = mapper.readTree(input);
+            JsonNode existing = merged.get(input.getName());
+            if (existing == null) {
+                merged.put(input.getName(), contents);
+            } else if (existing.isArray() && contents.isArray()) {
+                ((ArrayNode) existing).addAll((ArrayNode) contents);
+            } else if (existing.isObject() && contents.isObject()) {
+                ObjectNode target = (ObjectNode) existing;
+                contents.fields().forEachRemaining(field -> {
+                    JsonNode values = target.get(field.getKey());
+                    if (values == null) {
+                        target.set(field.getKey(), field.getValue());
+                    } else if (values.isArray() && field.getValue().isArray()) {
+                        ((ArrayNode) values).addAll((ArrayNode) field.getValue());
+                    } else {
+                        throw new GradleException("Unable to merge '" + field.getKey() + "' from " + input);
+                    }
+                });
+            } else {
+                throw new GradleException("Unable to merge GraalVM configuration file " + input);
+            }
+        }
+
+        File outputDir = outputDirectory.getAsFile().get();
+        getProject().delete(outputDir);
+        if (!outputDir.mkdirs()) {
+            throw new GradleException("Unable to create output directory " + outputDir);
+        }
+        for (Map.Entry<String, JsonNode> entry : merged.entrySet()) {
+            mapper.writeValue(new File(outputDir, entry.getKey()), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginConvention;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.util.PatternSet;
+
+/**
+ * Applies the graal annotation processor to this project and every Java subproject, and registers an
+ * {@value #AGGREGATE_TASK_NAME} task that merges each project's generated {@code META-INF/graal/*.json}
+ * configuration into a single set of files suitable for passing to native-image.
+ */
+public final class GraalAnnotationsPlugin implements Plugin<Project> {
+
+    public static final String AGGREGATE_TASK_NAME = "aggregateGraalConfig";
+
+    /** Project property that overrides the version of the processor and annotations added to each project. */
+    public static final String VERSION_PROPERTY = "graalAnnotationsVersion";
+
+    private static final String GROUP = "com.palantir.graal.annotations";
+
+    @Override
+    public void apply(Project project) {
+        TaskProvider<AggregateGraalConfigTask> aggregate = project.getTasks().register(
+                AGGREGATE_TASK_NAME, AggregateGraalConfigTask.class, task -> {
+                    task.setGroup("build");
+                    task.setDescription("Aggregates generated GraalVM configuration across all projects.");
+                    task.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("graal"));
+                });
+
+        project.allprojects(p -> p.getPlugins().withType(JavaPlugin.class, javaPlugin -> {
+            String version = processorVersion(p);
+            p.getDependencies().add(JavaPlugin.ANNOTATION_PROCESSOR_CONFIGURATION_NAME,
+                    GROUP + ":graal-annotations-processors:" + version);
+            p.getDependencies().add(JavaPlugin.COMPILE_ONLY_CONFIGURATION_NAME,
+                    GROUP + ":graal-annotations-api:" + version);
+
+            SourceSet main = p.getConvention().getPlugin(JavaPluginConvention.class)
+                    .getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+            aggregate.configure(task -> task.getConfigFiles().from(main.getOutput().getClassesDirs()
+                    .getAsFileTree()
+                    .matching(new PatternSet().include(AggregateGraalConfigTask.CONFIG_PATTERN))));
+        }));
+    }
+
+    private static String processorVersion(Project project) {
+        Object property = project.findProperty(VERSION_PROPERTY);
+        if (property != null) {
+            return property.toString();
+        }
+        String version = GraalAnnotationsPlugin.class.getPackage().getImplementationVersion();
+        if (version == null) {
+            throw new IllegalStateException("Unable to determine graal-annotations version from plugin manifest, "
+                    + "set the '" + VERSION_PROPERTY + "' project property instead");
+        }
+        return version;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.gradle;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class GraalAnnotationsPluginTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRegistersAggregateTask() {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        assertThat(project.getTasks().getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME))
+                .isInstanceOf(AggregateGraalConfigTask.class);
+    }
+
+    @Test
+    public void testAggregatesConfigFiles() throws IOException {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        AggregateGraalConfigTask task = (AggregateGraalConfigTask) project.getTasks()
+                .getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME);
+        task.getConfigFiles().from(
+                write("one/META-INF/graal/reflection-config.json", "[ { \"name\" : \"One\" } ]"),
+                write("two/META-INF/graal/reflection-config.json", "[ { \"name\" : \"Two\" } ]"));
+        task.aggregate();
+
+        File aggregated = new File(project.getBuildDir(), "graal/reflection-config.json");
+        assertThat(new String(Files.readAllBytes(aggregated.toPath()), StandardCharsets.UTF_8))
+                .isEqualToIgnoringNewLines("[ {\n"
+                        + "  \"name\" : \"One\"\n"
+                        + "}, {\n"
+                        + "  \"name\" : \"Two\"\n"
+                        + "} ]");
+        assertThat(new File(project.getBuildDir(), "graal/foreign-config.json")).hasContent("{ }");
+    }
+
+    @Test
+    public void testAggregatesForeignConfigFiles() throws IOException {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        AggregateGraalConfigTask task = (AggregateGraalConfigTask) project.getTasks()
+                .getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME);
+        task.getConfigFiles().from(
+                write("one/META-INF/graal/foreign-config.json",
+                        "{ \"downcalls\" : [ { \"returnType\" : \"jint\" } ] }"),
+                write("two/META-INF/graal/foreign-config.json",
+                        "{ \"downcalls\" : [ { \"returnType\" : \"void\" } ] }"));
+        task.aggregate();
+
+        File aggregated = new File(project.getBuildDir(), "graal/foreign-config.json");
+        assertThat(new String(Files.readAllBytes(aggregated.toPath()), StandardCharsets.UTF_8))
+                .isEqualToIgnoringNewLines("{\n"
+                        + "  \"downcalls\" : [ {\n"
+                        + "    \"returnType\" : \"jint\"\n"
+                        + "  }, {\n"
+                        + "    \"returnType\" : \"void\"\n"
+                        + "  } ]\n"
+                        + "}");
+        assertThat(new File(project.getBuildDir(), "graal/reflection-config.json")).hasContent("[ ]");
+    }
+
+    @Test
+    public void testNativeImageArgumentsResolveBeforeAggregation() {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        AggregateGraalConfigTask task = (AggregateGraalConfigTask) project.getTasks()
+                .getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME);
+        File graalDir = new File(project.getBuildDir(), "graal");
+        assertThat(task.getNativeImageArguments().get()).containsExactly(
+                "-H:ReflectionConfigurationFiles=" + new File(graalDir, "reflection-config.json").getAbsolutePath());
+    }
+
+    @Test
+    public void testReflectionOnlyArgumentsOmitForeignFlags() throws IOException {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        AggregateGraalConfigTask task = (AggregateGraalConfigTask) project.getTasks()
+                .getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME);
+        task.getConfigFiles().from(write("one/META-INF/graal/reflection-config.json", "[ { \"name\" : \"One\" } ]"));
+        task.aggregate();
+
+        assertThat(task.getNativeImageArguments().get())
+                .noneMatch(argument -> argument.contains("Foreign"))
+                .hasSize(1);
+    }
+
+    @Test
+    public void testForeignApiSupportAddsForeignFlags() {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        AggregateGraalConfigTask task = (AggregateGraalConfigTask) project.getTasks()
+                .getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME);
+        task.getForeignApiSupport().set(true);
+        File graalDir = new File(project.getBuildDir(), "graal");
+        assertThat(task.getNativeImageArguments().get()).containsExactly(
+                "-H:+ForeignAPISupport",
+                "-H:ForeignConfigurationFiles=" + new File(graalDir, "foreign-config.json").getAbsolutePath(),
+                "-H:ReflectionConfigurationFiles=" + new File(graalDir, "reflection-config.json").getAbsolutePath());
+    }
+
+    @Test
+    public void testConfiguresJavaProjects() throws IOException {
+        Project root = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        Project subproject = ProjectBuilder.builder()
+                .withParent(root)
+                .withName("sub")
+                .withProjectDir(folder.newFolder("sub"))
+                .build();
+        root.getExtensions().getExtraProperties().set(GraalAnnotationsPlugin.VERSION_PROPERTY, "1.2.3");
+        root.getPluginManager().apply(GraalAnnotationsPlugin.class);
+        subproject.getPluginManager().apply(JavaPlugin.class);
+
+        assertThat(dependencies(subproject, JavaPlugin.ANNOTATION_PROCESSOR_CONFIGURATION_NAME))
+                .containsExactly("com.palantir.graal.annotations:graal-annotations-processors:1.2.3");
+        assertThat(dependencies(subproject, JavaPlugin.COMPILE_ONLY_CONFIGURATION_NAME))
+                .containsExactly("com.palantir.graal.annotations:graal-annotations-api:1.2.3");
+
+        File generated = write("sub/build/classes/java/main/META-INF/graal/reflection-config.json", "[ ]");
+        write("sub/build/classes/java/main/com/example/Foo.class", "");
+        AggregateGraalConfigTask task = (AggregateGraalConfigTask) root.getTasks()
+                .getByName(GraalAnnotationsPlugin.AGGREGATE_TASK_NAME);
+        assertThat(task.getConfigFiles().getFiles()).containsExactly(generated);
+    }
+
+    @Test
+    public void testFailsWithoutVersion() {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        project.getPluginManager().apply(GraalAnnotationsPlugin.class);
+
+        assertThatThrownBy(() -> project.getPluginManager().apply(JavaPlugin.class))
+                .hasStackTraceContaining(GraalAnnotationsPlugin.VERSION_PROPERTY);
+    }
+
+    private static List<String> dependencies(Project project, String configuration) {
+        return project.getConfigurations().getByName(configuration).getDependencies().stream()
+                .map(dependency -> dependency.getGroup() + ":" + dependency.getName() + ":" + dependency.getVersion())
+                .collect(Collectors.toList());
+    }
+
+    private File write(String path, String contents) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
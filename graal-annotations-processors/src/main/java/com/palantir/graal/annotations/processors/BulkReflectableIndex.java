@@ -0,0 +1,95 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.processors;
+
+import com.palantir.graal.annotations.GraalReflectable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * Resolves the {@link GraalReflectable} settings a class inherits from its package or from annotations labeled with
+ * {@link GraalReflectable}. Each package and annotation type is inspected at most once per compilation, so the cost
+ * of resolving a class does not grow with the number of classes compiled.
+ */
+final class BulkReflectableIndex {
+
+    private final Elements elements;
+    private final Map<PackageElement, Optional<PackageRule>> packages = new HashMap<>();
+    private final Map<TypeElement, Optional<GraalReflectable>> annotationTypes = new HashMap<>();
+
+    BulkReflectableIndex(Elements elements) {
+        this.elements = elements;
+    }
+
+    /** Returns the settings inherited by the given class, preferring annotation settings over package settings. */
+    Optional<GraalReflectable> configFor(TypeElement element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            Optional<GraalReflectable> config = annotationTypes.computeIfAbsent(annotationType,
+                    type -> Optional.ofNullable(type.getAnnotation(GraalReflectable.class)));
+            if (config.isPresent()) {
+                return config;
+            }
+        }
+
+        PackageElement packageElement = elements.getPackageOf(element);
+        Optional<PackageRule> rule = packages.computeIfAbsent(packageElement,
+                pkg -> Optional.ofNullable(pkg.getAnnotation(GraalReflectable.class)).map(PackageRule::new));
+        String relativeName = packageElement.isUnnamed()
+                ? element.getQualifiedName().toString()
+                : element.getQualifiedName().toString().substring(packageElement.getQualifiedName().length() + 1);
+        return rule.filter(r -> r.matches(relativeName)).map(r -> r.config);
+    }
+
+    private static final class PackageRule {
+        private final GraalReflectable config;
+        private final List<Pattern> includes;
+        private final List<Pattern> excludes;
+
+        private PackageRule(GraalReflectable config) {
+            this.config = config;
+            this.includes = compile(config.include());
+            this.excludes = compile(config.exclude());
+        }
+
+        private boolean matches(String name) {
+            return includes.stream().anyMatch(p -> p.matcher(name).matches())
+                    && excludes.stream().noneMatch(p -> p.matcher(name).matches());
+        }
+
+        private static List<Pattern> compile(String[] globs) {
+            List<Pattern> patterns = new ArrayList<>();
+            for (String glob : globs) {
+                String[] literals = glob.split("\\*", -1);
+                StringBuilder regex = new StringBuilder(Pattern.quote(literals[0]));
+                for (int i = 1; i < literals.length; i++) {
+                    regex.append(".*").append(Pattern.quote(literals[i]));
+                }
+                patterns.add(Pattern.compile(regex.toString()));
+            }
+            return patterns;
+        }
+    }
+}
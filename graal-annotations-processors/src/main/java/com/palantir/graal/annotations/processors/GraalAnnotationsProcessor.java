@@ -18,40 +18,104 @@ package com.palantir.graal.annotations.processors;
 
 import com.google.auto.service.AutoService;
 import com.google.common.collect.Iterables;
+import com.palantir.graal.annotations.GraalDowncall;
 import com.palantir.graal.annotations.GraalReflectable;
+import com.palantir.graal.cds.ClassListFile;
+import com.palantir.graal.foreign.DowncallConfig;
+import com.palantir.graal.foreign.ForeignConfigFile;
+import com.palantir.graal.foreign.ImmutableDowncallConfig;
 import com.palantir.graal.reflection.FieldReflectionConfig;
 import com.palantir.graal.reflection.MethodReflectionConfig;
 import com.palantir.graal.reflection.ReflectionConfigFile;
 import com.palantir.graal.reflection.SummaryClassReflectionConfig;
+import com.sun.source.util.Trees;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 
 @AutoService(Processor.class)
-@SupportedAnnotationTypes("com.palantir.graal.annotations.GraalReflectable")
+@SupportedAnnotationTypes("*")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedOptions({GraalAnnotationsProcessor.INFER_REFLECTION_OPTION, GraalAnnotationsProcessor.CLASS_LIST_OPTION})
 public final class GraalAnnotationsProcessor extends AbstractProcessor {
 
+    /**
+     * When {@code true}, additionally registers classes and members referenced by {@link Class} reflection calls with
+     * constant arguments anywhere in the compiled sources. Requires javac.
+     */
+    static final String INFER_REFLECTION_OPTION = "graal.inferReflection";
+
+    /**
+     * When {@code true}, additionally emits a class list of every class registered for reflection, together with its
+     * enclosing and nested classes, suitable for dumping a Class Data Sharing archive without a training run.
+     */
+    static final String CLASS_LIST_OPTION = "graal.classList";
+
+    private static final String MEMORY_SEGMENT = "java.lang.foreign.MemorySegment";
+
     private ReflectionConfigFile reflection = new ReflectionConfigFile();
+    private ForeignConfigFile foreign = new ForeignConfigFile();
+    private ClassListFile classList;
+    private final Set<TypeElement> classListExpanded = new HashSet<>();
+    private BulkReflectableIndex bulkIndex;
+    private ReflectiveCallScanner reflectiveCallScanner;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        bulkIndex = new BulkReflectableIndex(processingEnv.getElementUtils());
+        if (Boolean.parseBoolean(processingEnv.getOptions().get(CLASS_LIST_OPTION))) {
+            classList = new ClassListFile();
+        }
+        if (Boolean.parseBoolean(processingEnv.getOptions().get(INFER_REFLECTION_OPTION))) {
+            try {
+                reflectiveCallScanner = new ReflectiveCallScanner(Trees.instance(processingEnv),
+                        processingEnv.getElementUtils(), processingEnv.getTypeUtils(), reflection);
+            } catch (IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "-A" + INFER_REFLECTION_OPTION + " is only supported by javac and will be ignored");
+            }
+        }
+    }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
         try {
             if (roundEnv.processingOver()) {
-                FileObject fileObject = processingEnv.getFiler()
-                        .createResource(StandardLocation.CLASS_OUTPUT, "", ReflectionConfigFile.PATH);
-                reflection.render(fileObject);
+                if (!reflection.isEmpty()) {
+                    FileObject fileObject = processingEnv.getFiler()
+                            .createResource(StandardLocation.CLASS_OUTPUT, "", ReflectionConfigFile.PATH);
+                    reflection.render(fileObject);
+                }
+                if (!foreign.isEmpty()) {
+                    FileObject fileObject = processingEnv.getFiler()
+                            .createResource(StandardLocation.CLASS_OUTPUT, "", ForeignConfigFile.PATH);
+                    foreign.render(fileObject);
+                }
+                if (classList != null && !classList.isEmpty()) {
+                    FileObject fileObject = processingEnv.getFiler()
+                            .createResource(StandardLocation.CLASS_OUTPUT, "", ClassListFile.PATH);
+                    classList.render(fileObject);
+                }
             } else {
                 processImpl(annotations, roundEnv);
             }
@@ -59,10 +123,19 @@ public final class GraalAnnotationsProcessor extends AbstractProcessor {
             // do not allow exceptions to reach the compiler
             error(e.getMessage(), null);
         }
-        return true;
+        // classes may inherit settings from any annotation, so inspect every source without claiming annotations
+        return false;
     }
 
     private void processImpl(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (reflectiveCallScanner != null) {
+            inferReflectiveCalls(roundEnv);
+        }
+
+        for (Element element : roundEnv.getRootElements()) {
+            processInheritedConfig(element);
+        }
+
         for (Element element : roundEnv.getElementsAnnotatedWith(GraalReflectable.class)) {
 
             // grab config from annotation
@@ -82,18 +155,48 @@ public final class GraalAnnotationsProcessor extends AbstractProcessor {
                 case CLASS:
                     processClass((TypeElement) element, config);
                     break;
+                case PACKAGE:
+                case ANNOTATION_TYPE:
+                    // applied to classes through the bulk index
+                    break;
                 default:
                     error("@GraalReflectable annotation appears on unexpected element kind "
                             + element.getKind(), element);
                     break;
             }
         }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(GraalDowncall.class)) {
+            processDowncall((ExecutableElement) element, element.getAnnotation(GraalDowncall.class));
+        }
+    }
+
+    private void inferReflectiveCalls(RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            reflectiveCallScanner.scan(element);
+        }
+    }
+
+    private void processInheritedConfig(Element element) {
+        if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+            return;
+        }
+        if (element.getKind().isClass() && element.getAnnotation(GraalReflectable.class) == null) {
+            bulkIndex.configFor((TypeElement) element).ifPresent(config -> {
+                addToClassList((TypeElement) element);
+                reflection.addInheritedClass(summaryOf((TypeElement) element, config));
+            });
+        }
+        for (Element enclosed : element.getEnclosedElements()) {
+            processInheritedConfig(enclosed);
+        }
     }
 
     private void processField(VariableElement element, GraalReflectable config) {
         TypeElement classElement = (TypeElement) element.getEnclosingElement();
+        addToClassList(classElement);
 
-        reflection.addField(classElement.getQualifiedName().toString(), FieldReflectionConfig.builder()
+        reflection.addField(binaryName(classElement), FieldReflectionConfig.builder()
                 .name(element.getSimpleName().toString())
                 .allowWrite(config.allowWrite())
                 .build());
@@ -101,23 +204,111 @@ public final class GraalAnnotationsProcessor extends AbstractProcessor {
 
     private void processMethod(ExecutableElement element) {
         TypeElement classElement = (TypeElement) element.getEnclosingElement();
+        addToClassList(classElement);
 
-        reflection.addMethod(classElement.getQualifiedName().toString(), MethodReflectionConfig.builder()
+        reflection.addMethod(binaryName(classElement), MethodReflectionConfig.builder()
                 .name(element.getSimpleName().toString())
                 .parameterTypes(Iterables.transform(element.getParameters(), ve -> ve.asType().toString()))
                 .build());
     }
 
     private void processClass(TypeElement element, GraalReflectable config) {
-        reflection.addClass(SummaryClassReflectionConfig.builder()
-                .name(element.getQualifiedName().toString())
+        addToClassList(element);
+        reflection.addClass(summaryOf(element, config));
+    }
+
+    private SummaryClassReflectionConfig summaryOf(TypeElement element, GraalReflectable config) {
+        return SummaryClassReflectionConfig.builder()
+                .name(binaryName(element))
                 .allDeclaredConstructors(config.allDeclaredConstructors())
                 .allDeclaredFields(config.allDeclaredFields())
                 .allDeclaredMethods(config.allDeclaredMethods())
                 .allPublicConstructors(config.allPublicConstructors())
                 .allPublicFields(config.allPublicFields())
                 .allPublicMethods(config.allPublicMethods())
-                .build());
+                .build();
+    }
+
+    private void addToClassList(TypeElement element) {
+        if (classList == null) {
+            return;
+        }
+        for (Element enclosing = element.getEnclosingElement();
+                enclosing.getKind().isClass() || enclosing.getKind().isInterface();
+                enclosing = enclosing.getEnclosingElement()) {
+            classList.addClass(binaryName((TypeElement) enclosing));
+        }
+        addNestedToClassList(element);
+    }
+
+    private void addNestedToClassList(TypeElement element) {
+        classList.addClass(binaryName(element));
+        // a class may already be listed as the enclosing class of another, without its nested classes
+        if (!classListExpanded.add(element)) {
+            return;
+        }
+        for (Element enclosed : element.getEnclosedElements()) {
+            if (enclosed.getKind().isClass() || enclosed.getKind().isInterface()) {
+                addNestedToClassList((TypeElement) enclosed);
+            }
+        }
+    }
+
+    /** Names classes as native-image and {@link Class#forName(String)} expect, e.g. {@code Outer$Inner}. */
+    private String binaryName(TypeElement element) {
+        return processingEnv.getElementUtils().getBinaryName(element).toString();
+    }
+
+    private void processDowncall(ExecutableElement element, GraalDowncall config) {
+        ImmutableDowncallConfig.Builder builder = DowncallConfig.builder();
+        if (config.returnType().isEmpty() && config.parameterTypes().length > 0) {
+            error("@GraalDowncall parameterTypes requires an explicit returnType", element);
+            return;
+        }
+        if (config.returnType().isEmpty()) {
+            List<String> parameterTypes = new ArrayList<>();
+            for (VariableElement parameter : element.getParameters()) {
+                parameterTypes.add(nativeType(parameter.asType()));
+            }
+            String returnType = nativeType(element.getReturnType());
+            if (returnType == null || parameterTypes.contains(null)) {
+                error("@GraalDowncall can only derive a function descriptor from primitive and " + MEMORY_SEGMENT
+                        + " types; specify returnType and parameterTypes explicitly", element);
+                return;
+            }
+            builder.returnType(returnType).parameterTypes(parameterTypes);
+        } else {
+            builder.returnType(config.returnType()).addParameterTypes(config.parameterTypes());
+        }
+        if (config.firstVariadicArg() >= 0) {
+            builder.putOptions("firstVariadicArg", config.firstVariadicArg());
+        }
+        if (config.captureCallState()) {
+            builder.putOptions("captureCallState", true);
+        }
+        foreign.addDowncall(builder.build());
+    }
+
+    /** Returns SubstrateVM's name for the native counterpart of a Java type, or null if it has none. */
+    private static String nativeType(TypeMirror type) {
+        switch (type.getKind()) {
+            case VOID:
+                return "void";
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "j" + type.getKind().name().toLowerCase(Locale.ROOT);
+            case DECLARED:
+                TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+                return typeElement.getQualifiedName().contentEquals(MEMORY_SEGMENT) ? "void*" : null;
+            default:
+                return null;
+        }
     }
 
     private GraalReflectable getExactlyOneGraalReflectableAnnotationOrNull(Element element) {
@@ -0,0 +1,197 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.processors;
+
+import com.palantir.graal.reflection.FieldReflectionConfig;
+import com.palantir.graal.reflection.MethodReflectionConfig;
+import com.palantir.graal.reflection.ReflectionConfigFile;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Scans source for invocations of {@link Class} reflection methods whose arguments are compile-time constants, e.g.
+ * {@code Class.forName("com.example.Foo")} or {@code Foo.class.getDeclaredMethod("bar", String.class)}, and registers
+ * exactly the referenced classes and members. Calls with any non-constant argument are ignored.
+ * <p>
+ * Classes are named by their binary name, e.g. {@code Outer$Inner}, matching the strings passed to
+ * {@link Class#forName(String)} so that both forms of reference produce a single entry.
+ */
+final class ReflectiveCallScanner extends TreePathScanner<Void, Void> {
+
+    private static final String CLASS = "java.lang.Class";
+
+    private final Trees trees;
+    private final Elements elements;
+    private final Types types;
+    private final ReflectionConfigFile reflection;
+
+    ReflectiveCallScanner(Trees trees, Elements elements, Types types, ReflectionConfigFile reflection) {
+        this.trees = trees;
+        this.elements = elements;
+        this.types = types;
+        this.reflection = reflection;
+    }
+
+    /** Scans the source of the given root element, if it was compiled from source in this compilation. */
+    void scan(Element rootElement) {
+        TreePath path = trees.getPath(rootElement);
+        if (path != null) {
+            scan(path, null);
+        }
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+        Element element = trees.getElement(getCurrentPath());
+        if (element != null && element.getKind() == ElementKind.METHOD
+                && ((TypeElement) element.getEnclosingElement()).getQualifiedName().contentEquals(CLASS)) {
+            processReflectiveCall(node, (ExecutableElement) element);
+        }
+        return super.visitMethodInvocation(node, unused);
+    }
+
+    private void processReflectiveCall(MethodInvocationTree node, ExecutableElement method) {
+        List<? extends ExpressionTree> args = node.getArguments();
+        switch (method.getSimpleName().toString()) {
+            case "forName":
+                constantString(args.get(0)).ifPresent(reflection::addInferredClass);
+                break;
+            case "getField":
+            case "getDeclaredField":
+                receiverClassName(node).ifPresent(className -> constantString(args.get(0))
+                        .ifPresent(name -> reflection.addInferredField(className, FieldReflectionConfig.builder()
+                                .name(name)
+                                .allowWrite(false)
+                                .build())));
+                break;
+            case "getMethod":
+            case "getDeclaredMethod":
+                receiverClassName(node).ifPresent(className -> constantString(args.get(0))
+                        .ifPresent(name -> parameterTypes(args.subList(1, args.size()))
+                                .ifPresent(parameterTypes -> reflection.addInferredMethod(className,
+                                        MethodReflectionConfig.builder()
+                                                .name(name)
+                                                .parameterTypes(parameterTypes)
+                                                .build()))));
+                break;
+            case "getConstructor":
+            case "getDeclaredConstructor":
+                receiverClassName(node).ifPresent(className -> parameterTypes(args)
+                        .ifPresent(parameterTypes -> reflection.addInferredMethod(className,
+                                MethodReflectionConfig.builder()
+                                        .name("<init>")
+                                        .parameterTypes(parameterTypes)
+                                        .build())));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Resolves the class a member lookup is invoked on, either from a constant {@code Class.forName} receiver or from
+     * a receiver statically typed as {@code Class<Foo>}.
+     */
+    private Optional<String> receiverClassName(MethodInvocationTree node) {
+        if (node.getMethodSelect().getKind() != Tree.Kind.MEMBER_SELECT) {
+            return Optional.empty();
+        }
+        ExpressionTree receiver = ((MemberSelectTree) node.getMethodSelect()).getExpression();
+        if (receiver.getKind() == Tree.Kind.METHOD_INVOCATION) {
+            Element element = trees.getElement(pathOf(receiver));
+            if (element != null && element.getSimpleName().contentEquals("forName")
+                    && ((TypeElement) element.getEnclosingElement()).getQualifiedName().contentEquals(CLASS)) {
+                return constantString(((MethodInvocationTree) receiver).getArguments().get(0));
+            }
+        }
+        TypeMirror receiverType = trees.getTypeMirror(pathOf(receiver));
+        if (receiverType == null || receiverType.getKind() != TypeKind.DECLARED) {
+            return Optional.empty();
+        }
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) receiverType).getTypeArguments();
+        if (typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+            return Optional.empty();
+        }
+        return Optional.of(binaryName(typeArguments.get(0)));
+    }
+
+    /** Returns the parameter types named by a list of class literals, or empty if any argument is not a literal. */
+    private Optional<List<String>> parameterTypes(List<? extends ExpressionTree> args) {
+        List<String> parameterTypes = new ArrayList<>();
+        for (ExpressionTree arg : args) {
+            if (arg.getKind() != Tree.Kind.MEMBER_SELECT
+                    || !((MemberSelectTree) arg).getIdentifier().contentEquals("class")) {
+                return Optional.empty();
+            }
+            TypeMirror type = trees.getTypeMirror(pathOf(((MemberSelectTree) arg).getExpression()));
+            if (type == null || type.getKind() == TypeKind.ERROR) {
+                return Optional.empty();
+            }
+            parameterTypes.add(binaryName(type));
+        }
+        return Optional.of(parameterTypes);
+    }
+
+    private String binaryName(TypeMirror type) {
+        TypeMirror erased = types.erasure(type);
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return elements.getBinaryName((TypeElement) ((DeclaredType) erased).asElement()).toString();
+        }
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return binaryName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        return erased.toString();
+    }
+
+    private Optional<String> constantString(ExpressionTree expression) {
+        if (expression.getKind() == Tree.Kind.STRING_LITERAL) {
+            return Optional.of((String) ((LiteralTree) expression).getValue());
+        }
+        if (expression.getKind() == Tree.Kind.IDENTIFIER || expression.getKind() == Tree.Kind.MEMBER_SELECT) {
+            Element element = trees.getElement(pathOf(expression));
+            if (element instanceof VariableElement
+                    && ((VariableElement) element).getConstantValue() instanceof String) {
+                return Optional.of((String) ((VariableElement) element).getConstantValue());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private TreePath pathOf(Tree tree) {
+        return TreePath.getPath(getCurrentPath(), tree);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.cds;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.tools.FileObject;
+
+/**
+ * Wrapper for managing the HotSpot class list format consumed by {@code -XX:SharedClassListFile} when dumping a
+ * Class Data Sharing archive: one class per line, named by its binary name in internal form, e.g.
+ * {@code java/util/Map$Entry}.
+ */
+public final class ClassListFile {
+
+    public static final String PATH = "META-INF/graal/classlist";
+
+    private final Set<String> classes;
+
+    public ClassListFile() {
+        classes = new TreeSet<>();
+    }
+
+    /** Adds a class by its binary name, e.g. {@code java.util.Map$Entry}. */
+    public void addClass(String binaryName) {
+        classes.add(binaryName.replace('.', '/'));
+    }
+
+    public boolean isEmpty() {
+        return classes.isEmpty();
+    }
+
+    public void render(FileObject fileObject) throws IOException {
+        try (Writer writer = fileObject.openWriter()) {
+            for (String className : classes) {
+                writer.write(className);
+                writer.write('\n');
+            }
+        }
+    }
+}
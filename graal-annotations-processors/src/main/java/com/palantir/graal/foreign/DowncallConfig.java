@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.foreign;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.List;
+import java.util.Map;
+import org.immutables.value.Value;
+
+/**
+ * Value type corresponding to SubstrateVM's JSON format for foreign function downcall configuration, see
+ * https://www.graalvm.org/latest/reference-manual/native-image/native-code-interoperability/foreign-interface/.
+ */
+@JsonSerialize(as = ImmutableDowncallConfig.class)
+@JsonPropertyOrder({"returnType", "parameterTypes", "options"})
+@Value.Immutable
+public interface DowncallConfig {
+    String returnType();
+    List<String> parameterTypes();
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    Map<String, Object> options();
+
+    static ImmutableDowncallConfig.Builder builder() {
+        return ImmutableDowncallConfig.builder();
+    }
+}
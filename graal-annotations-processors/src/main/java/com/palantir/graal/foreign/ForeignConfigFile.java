@@ -0,0 +1,60 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.foreign;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.FileObject;
+
+/**
+ * Wrapper for managing SubstrateVM's JSON format for foreign function configuration, see
+ * https://www.graalvm.org/latest/reference-manual/native-image/native-code-interoperability/foreign-interface/.
+ */
+public final class ForeignConfigFile {
+
+    public static final String PATH = "META-INF/graal/foreign-config.json";
+
+    private final Set<DowncallConfig> downcalls;
+
+    public ForeignConfigFile() {
+        downcalls = new LinkedHashSet<>();
+    }
+
+    public void addDowncall(DowncallConfig config) {
+        downcalls.add(config);
+    }
+
+    public boolean isEmpty() {
+        return downcalls.isEmpty();
+    }
+
+    public void render(FileObject fileObject) throws IOException {
+        Map<String, Set<DowncallConfig>> elements = Collections.singletonMap("downcalls", downcalls);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        try (OutputStream os = fileObject.openOutputStream()) {
+            mapper.writeValue(os, elements);
+        }
+    }
+}
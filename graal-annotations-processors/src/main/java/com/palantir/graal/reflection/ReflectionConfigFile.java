@@ -19,13 +19,17 @@ package com.palantir.graal.reflection;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.tools.FileObject;
 
 /**
@@ -38,10 +42,14 @@ public final class ReflectionConfigFile {
 
     private final Map<String, ImmutableSpecificClassReflectionConfig.Builder> specifics;
     private final Map<String, SummaryClassReflectionConfig> summaries;
+    private final Map<String, SummaryClassReflectionConfig> inheritedSummaries;
+    private final Map<String, InferredMembers> inferred;
 
     public ReflectionConfigFile() {
         specifics = new HashMap<>();
         summaries = new HashMap<>();
+        inheritedSummaries = new HashMap<>();
+        inferred = new LinkedHashMap<>();
     }
 
     public void addField(String className, FieldReflectionConfig config) {
@@ -56,17 +64,89 @@ public final class ReflectionConfigFile {
         summaries.put(config.name(), config);
     }
 
+    /**
+     * Registers a class with settings inherited from its package or an annotation rather than declared on the class.
+     * Unlike {@link #addClass}, these settings are kept alongside any annotated members of the class.
+     */
+    public void addInheritedClass(SummaryClassReflectionConfig config) {
+        inheritedSummaries.put(config.name(), config);
+    }
+
+    /**
+     * Registers a class discovered from source rather than declared by annotation. Inferred members are added to the
+     * annotated settings of the same class, never replacing them.
+     */
+    public void addInferredClass(String className) {
+        getOrCreateInferredMembers(className);
+    }
+
+    public void addInferredField(String className, FieldReflectionConfig config) {
+        getOrCreateInferredMembers(className).fields.add(config);
+    }
+
+    public void addInferredMethod(String className, MethodReflectionConfig config) {
+        getOrCreateInferredMembers(className).methods.add(config);
+    }
+
+    public boolean isEmpty() {
+        return specifics.isEmpty() && summaries.isEmpty() && inheritedSummaries.isEmpty() && inferred.isEmpty();
+    }
+
     public void render(FileObject fileObject) throws IOException {
         List<ReflectionConfigElement> elements = new ArrayList<>();
 
         summaries.forEach((k, v) -> {
-            if (!specifics.containsKey(k)) {
+            InferredMembers members = inferred.get(k);
+            if (specifics.containsKey(k)) {
+                // the most specific settings are rendered below
+            } else if (members == null) {
+                elements.add(v);
+            } else {
+                // summary flags may not cover the inferred members, e.g. private constructors
+                elements.add(merge(v, members.fields, members.methods));
+            }
+        });
+
+        inheritedSummaries.forEach((k, v) -> {
+            if (summaries.containsKey(k)) {
+                // class-level annotations take precedence over inherited settings
+            } else if (!specifics.containsKey(k) && !inferred.containsKey(k)) {
                 elements.add(v);
+            } else {
+                // bulk settings apply to every class in scope, so a single annotated member must not discard them
+                SpecificClassReflectionConfig annotated = specifics.getOrDefault(k,
+                        ImmutableSpecificClassReflectionConfig.builder().name(k)).build();
+                InferredMembers members = inferred.getOrDefault(k, new InferredMembers());
+                elements.add(merge(v,
+                        Iterables.concat(annotated.fields(), members.fieldsNotIn(annotated)),
+                        Iterables.concat(annotated.methods(), members.methodsNotIn(annotated))));
             }
         });
 
         specifics.forEach((k, v) -> {
-            elements.add(v.build());
+            InferredMembers members = inferred.get(k);
+            if (inheritedSummaries.containsKey(k) && !summaries.containsKey(k)) {
+                // merged with the inherited settings above
+            } else if (members == null) {
+                elements.add(v.build());
+            } else {
+                SpecificClassReflectionConfig annotated = v.build();
+                elements.add(ImmutableSpecificClassReflectionConfig.builder()
+                        .from(annotated)
+                        .addAllFields(members.fieldsNotIn(annotated))
+                        .addAllMethods(members.methodsNotIn(annotated))
+                        .build());
+            }
+        });
+
+        inferred.forEach((k, v) -> {
+            if (!summaries.containsKey(k) && !inheritedSummaries.containsKey(k) && !specifics.containsKey(k)) {
+                elements.add(ImmutableSpecificClassReflectionConfig.builder()
+                        .name(k)
+                        .addAllFields(v.fields)
+                        .addAllMethods(v.methods)
+                        .build());
+            }
         });
 
         File resultFile = new File(PATH);
@@ -82,6 +162,23 @@ public final class ReflectionConfigFile {
         }
     }
 
+    private static MergedClassReflectionConfig merge(
+            SummaryClassReflectionConfig summary,
+            Iterable<FieldReflectionConfig> fields,
+            Iterable<MethodReflectionConfig> methods) {
+        return ImmutableMergedClassReflectionConfig.builder()
+                .name(summary.name())
+                .allPublicConstructors(summary.allPublicConstructors())
+                .allPublicMethods(summary.allPublicMethods())
+                .allPublicFields(summary.allPublicFields())
+                .allDeclaredConstructors(summary.allDeclaredConstructors())
+                .allDeclaredMethods(summary.allDeclaredMethods())
+                .allDeclaredFields(summary.allDeclaredFields())
+                .addAllFields(fields)
+                .addAllMethods(methods)
+                .build();
+    }
+
     private ImmutableSpecificClassReflectionConfig.Builder getOrCreateSpecificBuilder(String className) {
         ImmutableSpecificClassReflectionConfig.Builder classConfig = specifics.get(className);
         if (classConfig == null) {
@@ -91,4 +188,25 @@ public final class ReflectionConfigFile {
         }
         return classConfig;
     }
+
+    private InferredMembers getOrCreateInferredMembers(String className) {
+        return inferred.computeIfAbsent(className, k -> new InferredMembers());
+    }
+
+    private static final class InferredMembers {
+        private final Set<FieldReflectionConfig> fields = new LinkedHashSet<>();
+        private final Set<MethodReflectionConfig> methods = new LinkedHashSet<>();
+
+        private Set<FieldReflectionConfig> fieldsNotIn(SpecificClassReflectionConfig config) {
+            Set<FieldReflectionConfig> result = new LinkedHashSet<>(fields);
+            config.fields().forEach(field -> result.removeIf(f -> f.name().equals(field.name())));
+            return result;
+        }
+
+        private Set<MethodReflectionConfig> methodsNotIn(SpecificClassReflectionConfig config) {
+            Set<MethodReflectionConfig> result = new LinkedHashSet<>(methods);
+            result.removeAll(config.methods());
+            return result;
+        }
+    }
 }
@@ -18,6 +18,7 @@ package com.palantir.graal.annotations.processors;
 
 import static com.google.testing.compile.CompilationSubject.assertThat;
 import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertFalse;
 
 import com.google.testing.compile.Compilation;
 import com.google.testing.compile.JavaFileObjects;
@@ -318,4 +319,450 @@ public final class GraalAnnotationsProccessorTests {
                 .onLine(10)
                 .atColumn(3);
     }
+
+    @Test
+    public void testInferredReflectionIsOptIn() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("Test",
+                        "final class Test {\n"
+                                + "  static Object create() throws Exception {\n"
+                                + "    return Class.forName(\"Foo\").getDeclaredConstructor().newInstance();\n"
+                                + "  }\n"
+                                + "}\n"));
+
+        assertThat(compilation).succeeded();
+        assertFalse(compilation.generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .isPresent());
+    }
+
+    @Test
+    public void testInferredReflection() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .withOptions("-Agraal.inferReflection=true")
+                .compile(JavaFileObjects.forSourceString("Test",
+                        "import java.util.*;\n"
+                                + "\n"
+                                + "final class Test {\n"
+                                + "  private static final String NAME = \"foo\";\n"
+                                + "  String foo;\n"
+                                + "  Test(int foo, List<String> bar) {}\n"
+                                + "  private void bar(int foo, String[] bar) {}\n"
+                                + "  static final class In {\n"
+                                + "    int x;\n"
+                                + "    private void baz(In[] in) {}\n"
+                                + "  }\n"
+                                + "  static void reflect(String dynamic, Class<?> unknown) throws Exception {\n"
+                                + "    Class.forName(\"java.lang.String\");\n"
+                                + "    Class.forName(\"Test\").getDeclaredField(NAME);\n"
+                                + "    Test.class.getDeclaredField(\"foo\");\n"
+                                + "    Test.class.getDeclaredConstructor(int.class, List.class);\n"
+                                + "    Test.class.getDeclaredMethod(\"bar\", int.class, String[].class);\n"
+                                + "    Test.class.getDeclaredMethod(dynamic);\n"
+                                + "    unknown.getDeclaredField(\"foo\");\n"
+                                + "    Class.forName(dynamic);\n"
+                                + "    Class.forName(\"Test$In\").getDeclaredField(\"x\");\n"
+                                + "    Test.In.class.getDeclaredField(\"x\");\n"
+                                + "    Test.In.class.getDeclaredMethod(\"baz\", Test.In[].class);\n"
+                                + "  }\n"
+                                + "}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"java.lang.String\",\n"
+                        + "  \"fields\" : [ ],\n"
+                        + "  \"methods\" : [ ]\n"
+                        + "}, {\n"
+                        + "  \"name\" : \"Test\",\n"
+                        + "  \"fields\" : [ {\n"
+                        + "    \"name\" : \"foo\",\n"
+                        + "    \"allowWrite\" : false\n"
+                        + "  } ],\n"
+                        + "  \"methods\" : [ {\n"
+                        + "    \"name\" : \"<init>\",\n"
+                        + "    \"parameterTypes\" : [ \"int\", \"java.util.List\" ]\n"
+                        + "  }, {\n"
+                        + "    \"name\" : \"bar\",\n"
+                        + "    \"parameterTypes\" : [ \"int\", \"java.lang.String[]\" ]\n"
+                        + "  } ]\n"
+                        + "}, {\n"
+                        + "  \"name\" : \"Test$In\",\n"
+                        + "  \"fields\" : [ {\n"
+                        + "    \"name\" : \"x\",\n"
+                        + "    \"allowWrite\" : false\n"
+                        + "  } ],\n"
+                        + "  \"methods\" : [ {\n"
+                        + "    \"name\" : \"baz\",\n"
+                        + "    \"parameterTypes\" : [ \"Test$In[]\" ]\n"
+                        + "  } ]\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testInferredReflectionMergesWithAnnotatedNestedClass() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .withOptions("-Agraal.inferReflection=true")
+                .compile(JavaFileObjects.forSourceString("Test",
+                        "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "final class Test {\n"
+                                + "  static final class In {\n"
+                                + "    @GraalReflectable int x;\n"
+                                + "    private In() {}\n"
+                                + "  }\n"
+                                + "  static void reflect() throws Exception {\n"
+                                + "    Test.In.class.getDeclaredConstructor();\n"
+                                + "  }\n"
+                                + "}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"Test$In\",\n"
+                        + "  \"fields\" : [ {\n"
+                        + "    \"name\" : \"x\",\n"
+                        + "    \"allowWrite\" : false\n"
+                        + "  } ],\n"
+                        + "  \"methods\" : [ {\n"
+                        + "    \"name\" : \"<init>\",\n"
+                        + "    \"parameterTypes\" : [ ]\n"
+                        + "  } ]\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testInferredReflectionDoesNotOverrideClassAnnotation() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .withOptions("-Agraal.inferReflection=true")
+                .compile(JavaFileObjects.forSourceString("Test",
+                        "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "@GraalReflectable\n"
+                                + "final class Test {\n"
+                                + "  int foo;\n"
+                                + "  private Test() {}\n"
+                                + "  static void reflect() throws Exception {\n"
+                                + "    Test.class.getDeclaredField(\"foo\");\n"
+                                + "    Test.class.getDeclaredConstructor();\n"
+                                + "  }\n"
+                                + "}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"Test\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : true,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : true,\n"
+                        + "  \"allDeclaredFields\" : true,\n"
+                        + "  \"fields\" : [ {\n"
+                        + "    \"name\" : \"foo\",\n"
+                        + "    \"allowWrite\" : false\n"
+                        + "  } ],\n"
+                        + "  \"methods\" : [ {\n"
+                        + "    \"name\" : \"<init>\",\n"
+                        + "    \"parameterTypes\" : [ ]\n"
+                        + "  } ]\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testPackageAnnotation() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("com.example.package-info",
+                        "@com.palantir.graal.annotations.GraalReflectable(\n"
+                                + "  include = \"*Dto\",\n"
+                                + "  exclude = \"Internal*\",\n"
+                                + "  allDeclaredMethods = false)\n"
+                                + "package com.example;\n"),
+                        JavaFileObjects.forSourceString("com.example.FooDto",
+                                "package com.example;\n"
+                                        + "\n"
+                                        + "final class FooDto {}\n"),
+                        JavaFileObjects.forSourceString("com.example.InternalDto",
+                                "package com.example;\n"
+                                        + "\n"
+                                        + "final class InternalDto {}\n"),
+                        JavaFileObjects.forSourceString("com.example.Service",
+                                "package com.example;\n"
+                                        + "\n"
+                                        + "final class Service {}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"com.example.FooDto\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : true,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : false,\n"
+                        + "  \"allDeclaredFields\" : true\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testPackageAnnotationMergesWithMemberAnnotations() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("com.example.package-info",
+                        "@com.palantir.graal.annotations.GraalReflectable(include = \"*Dto\")\n"
+                                + "package com.example;\n"),
+                        JavaFileObjects.forSourceString("com.example.FooDto",
+                                "package com.example;\n"
+                                        + "\n"
+                                        + "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                        + "\n"
+                                        + "final class FooDto {\n"
+                                        + "  @GraalReflectable int x;\n"
+                                        + "  public int y;\n"
+                                        + "  static final class BarDto {}\n"
+                                        + "}\n"));
+
+        // settings inherited from the package are kept alongside annotated members
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"com.example.FooDto\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : true,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : true,\n"
+                        + "  \"allDeclaredFields\" : true,\n"
+                        + "  \"fields\" : [ {\n"
+                        + "    \"name\" : \"x\",\n"
+                        + "    \"allowWrite\" : false\n"
+                        + "  } ],\n"
+                        + "  \"methods\" : [ ]\n"
+                        + "}, {\n"
+                        + "  \"name\" : \"com.example.FooDto$BarDto\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : true,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : true,\n"
+                        + "  \"allDeclaredFields\" : true\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testMetaAnnotation() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("ApiModel",
+                        "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "@GraalReflectable(allPublicFields = false)\n"
+                                + "@interface ApiModel {}\n"),
+                        JavaFileObjects.forSourceString("Test",
+                                "@ApiModel\n"
+                                        + "final class Test {\n"
+                                        + "  @ApiModel\n"
+                                        + "  static final class Nested {}\n"
+                                        + "}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"Test$Nested\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : false,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : true,\n"
+                        + "  \"allDeclaredFields\" : true\n"
+                        + "}, {\n"
+                        + "  \"name\" : \"Test\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : false,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : true,\n"
+                        + "  \"allDeclaredFields\" : true\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testClassAnnotationOverridesMetaAnnotation() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("ApiModel",
+                        "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "@GraalReflectable(allPublicFields = false)\n"
+                                + "@interface ApiModel {}\n"),
+                        JavaFileObjects.forSourceString("Test",
+                                "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                        + "\n"
+                                        + "@ApiModel\n"
+                                        + "@GraalReflectable\n"
+                                        + "final class Test {}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("[ {\n"
+                        + "  \"name\" : \"Test\",\n"
+                        + "  \"allPublicConstructors\" : true,\n"
+                        + "  \"allPublicMethods\" : true,\n"
+                        + "  \"allPublicFields\" : true,\n"
+                        + "  \"allDeclaredConstructors\" : false,\n"
+                        + "  \"allDeclaredMethods\" : true,\n"
+                        + "  \"allDeclaredFields\" : true\n"
+                        + "} ]");
+    }
+
+    @Test
+    public void testDowncallAnnotations() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("Test",
+                        "import com.palantir.graal.annotations.GraalDowncall;\n"
+                                + "\n"
+                                + "final class Test {\n"
+                                + "  @GraalDowncall\n"
+                                + "  static int abs(int value) { return 0; }\n"
+                                + "  @GraalDowncall\n"
+                                + "  static long labs(long value) { return 0; }\n"
+                                + "  @GraalDowncall(\n"
+                                + "    returnType = \"jint\",\n"
+                                + "    parameterTypes = {\"void*\", \"jint\"},\n"
+                                + "    firstVariadicArg = 1,\n"
+                                + "    captureCallState = true)\n"
+                                + "  static int printf(Object format, int value) { return 0; }\n"
+                                + "}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/foreign-config.json")
+                .contentsAsUtf8String()
+                .isEqualTo("{\n"
+                        + "  \"downcalls\" : [ {\n"
+                        + "    \"returnType\" : \"jint\",\n"
+                        + "    \"parameterTypes\" : [ \"jint\" ]\n"
+                        + "  }, {\n"
+                        + "    \"returnType\" : \"jlong\",\n"
+                        + "    \"parameterTypes\" : [ \"jlong\" ]\n"
+                        + "  }, {\n"
+                        + "    \"returnType\" : \"jint\",\n"
+                        + "    \"parameterTypes\" : [ \"void*\", \"jint\" ],\n"
+                        + "    \"options\" : {\n"
+                        + "      \"firstVariadicArg\" : 1,\n"
+                        + "      \"captureCallState\" : true\n"
+                        + "    }\n"
+                        + "  } ]\n"
+                        + "}");
+        assertFalse(compilation.generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/reflection-config.json")
+                .isPresent());
+    }
+
+    @Test
+    public void testErrorForDowncallWithUnsupportedTypes() {
+        JavaFileObject sourceFile = JavaFileObjects.forSourceString("Test",
+                "import com.palantir.graal.annotations.GraalDowncall;\n"
+                        + "\n"
+                        + "final class Test {\n"
+                        + "  @GraalDowncall\n"
+                        + "  static int strlen(String value) { return 0; }\n"
+                        + "}\n");
+
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor()).compile(sourceFile);
+        assertThat(compilation)
+                .hadErrorContaining("@GraalDowncall can only derive a function descriptor")
+                .inFile(sourceFile)
+                .onLine(5);
+    }
+
+    @Test
+    public void testErrorForDowncallWithParameterTypesOnly() {
+        JavaFileObject sourceFile = JavaFileObjects.forSourceString("Test",
+                "import com.palantir.graal.annotations.GraalDowncall;\n"
+                        + "\n"
+                        + "final class Test {\n"
+                        + "  @GraalDowncall(parameterTypes = \"void*\")\n"
+                        + "  static int f(int x) { return 0; }\n"
+                        + "}\n");
+
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor()).compile(sourceFile);
+        assertThat(compilation)
+                .hadErrorContaining("@GraalDowncall parameterTypes requires an explicit returnType")
+                .inFile(sourceFile)
+                .onLine(5);
+    }
+
+    @Test
+    public void testClassList() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .withOptions("-Agraal.classList=true")
+                .compile(JavaFileObjects.forSourceString("com.example.Test",
+                        "package com.example;\n"
+                                + "\n"
+                                + "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "final class Test {\n"
+                                + "  static final class Outer {\n"
+                                + "    @GraalReflectable\n"
+                                + "    static final class Model {\n"
+                                + "      enum Kind { A }\n"
+                                + "    }\n"
+                                + "    @GraalReflectable int foo;\n"
+                                + "  }\n"
+                                + "  static final class Unrelated {}\n"
+                                + "}\n"),
+                        JavaFileObjects.forSourceString("com.example.Other", "package com.example;\n"
+                                + "\n"
+                                + "final class Other {}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/classlist")
+                .contentsAsUtf8String()
+                .isEqualTo("com/example/Test\n"
+                        + "com/example/Test$Outer\n"
+                        + "com/example/Test$Outer$Model\n"
+                        + "com/example/Test$Outer$Model$Kind\n");
+    }
+
+    @Test
+    public void testClassListExpandsClassRegisteredAfterItsNestedClass() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .withOptions("-Agraal.classList=true")
+                .compile(JavaFileObjects.forSourceString("ApiModel",
+                        "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "@GraalReflectable\n"
+                                + "@interface ApiModel {}\n"),
+                        JavaFileObjects.forSourceString("Test",
+                                "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                        + "\n"
+                                        + "@GraalReflectable\n"
+                                        + "final class Test {\n"
+                                        + "  @ApiModel\n"
+                                        + "  static final class Model {}\n"
+                                        + "  static final class Sibling {}\n"
+                                        + "}\n"));
+
+        assertThat(compilation)
+                .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/classlist")
+                .contentsAsUtf8String()
+                .isEqualTo("Test\n"
+                        + "Test$Model\n"
+                        + "Test$Sibling\n");
+    }
+
+    @Test
+    public void testClassListIsOptIn() {
+        Compilation compilation = javac().withProcessors(new GraalAnnotationsProcessor())
+                .compile(JavaFileObjects.forSourceString("Test",
+                        "import com.palantir.graal.annotations.GraalReflectable;\n"
+                                + "\n"
+                                + "@GraalReflectable\n"
+                                + "final class Test {}\n"));
+
+        assertThat(compilation).succeeded();
+        assertFalse(compilation.generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/graal/classlist").isPresent());
+    }
 }
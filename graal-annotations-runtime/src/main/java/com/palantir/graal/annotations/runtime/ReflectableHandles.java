@@ -0,0 +1,407 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Lazily resolved {@link MethodHandle}s for the members of a class that are registered in the reflection configuration
+ * generated from {@code @GraalReflectable}. The registered members of each class are found once and cached in a
+ * {@link ClassValue}, and are resolved with the caller's {@link MethodHandles.Lookup}, so that only members the caller
+ * could already access are returned. Resolved handles are cached per lookup class, so that each member is unreflected
+ * at most once per caller and repeated lookups of a member neither search nor allocate.
+ * <p>
+ * Handles may still be kept in {@code static final} fields, which lets the JIT compiler inline their invocation:
+ * <pre>{@code
+ * private static final MethodHandle GET_BAR =
+ *         ReflectableHandles.of(Foo.class, MethodHandles.lookup()).getter("bar");
+ * }</pre>
+ */
+public final class ReflectableHandles {
+
+    private static final ClassValue<RegisteredMembers> REGISTERED = new ClassValue<RegisteredMembers>() {
+        @Override
+        protected RegisteredMembers computeValue(Class<?> type) {
+            return RegisteredMembers.find(type);
+        }
+    };
+
+    private static final ClassValue<ConcurrentMap<Class<?>, ReflectableHandles>> RESOLVED =
+            new ClassValue<ConcurrentMap<Class<?>, ReflectableHandles>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, ReflectableHandles> computeValue(Class<?> lookupClass) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private static final ResolvedExecutable[] NONE = new ResolvedExecutable[0];
+
+    private final Class<?> type;
+    private final MethodHandles.Lookup lookup;
+    private final RegisteredMembers registered;
+    private final ConcurrentMap<String, Optional<MethodHandle>> getters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Optional<MethodHandle>> setters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ResolvedExecutable[]> methods = new ConcurrentHashMap<>();
+    private volatile ResolvedExecutable[] constructors;
+
+    private ReflectableHandles(Class<?> type, MethodHandles.Lookup lookup) {
+        this.type = type;
+        this.lookup = lookup;
+        this.registered = REGISTERED.get(type);
+    }
+
+    /**
+     * Returns handles for the registered members of {@code type} that {@code lookup} has access to. Members the lookup
+     * cannot access are omitted, exactly as if they were not registered.
+     */
+    public static ReflectableHandles of(Class<?> type, MethodHandles.Lookup lookup) {
+        ConcurrentMap<Class<?>, ReflectableHandles> resolved = RESOLVED.get(lookup.lookupClass());
+        ReflectableHandles handles = resolved.get(type);
+        if (handles == null) {
+            handles = resolved.computeIfAbsent(type, t -> new ReflectableHandles(t, lookup));
+        }
+        // lookups for the same class may still differ in access, e.g. after Lookup#dropLookupMode
+        return handles.lookup.lookupModes() == lookup.lookupModes() ? handles : new ReflectableHandles(type, lookup);
+    }
+
+    /** Returns a getter for the named reflectable field, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle getter(String fieldName) {
+        Optional<MethodHandle> handle = getters.get(fieldName);
+        if (handle == null) {
+            handle = getters.computeIfAbsent(fieldName, name -> resolveField(name, false));
+        }
+        if (!handle.isPresent()) {
+            throw notFound("readable field", fieldName);
+        }
+        return handle.get();
+    }
+
+    /**
+     * Returns a setter for the named reflectable non-final field, throwing {@link IllegalArgumentException} if none
+     * exists. Final fields cannot be written through a caller's lookup, so never have a setter.
+     */
+    public MethodHandle setter(String fieldName) {
+        Optional<MethodHandle> handle = setters.get(fieldName);
+        if (handle == null) {
+            handle = setters.computeIfAbsent(fieldName, name -> resolveField(name, true));
+        }
+        if (!handle.isPresent()) {
+            throw notFound("writable field", fieldName);
+        }
+        return handle.get();
+    }
+
+    /** Returns the named reflectable method, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle method(String name) {
+        for (ResolvedExecutable method : methodsNamed(name)) {
+            if (method.parameterTypes.length == 0) {
+                return method.handle;
+            }
+        }
+        throw notFound("method", name + "()");
+    }
+
+    /** Returns the named reflectable method, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle method(String name, Class<?> parameterType) {
+        for (ResolvedExecutable method : methodsNamed(name)) {
+            if (method.hasParameters(parameterType)) {
+                return method.handle;
+            }
+        }
+        throw notFound("method", name + describe(parameterType));
+    }
+
+    /** Returns the named reflectable method, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle method(String name, Class<?> firstParameterType, Class<?> secondParameterType) {
+        for (ResolvedExecutable method : methodsNamed(name)) {
+            if (method.hasParameters(firstParameterType, secondParameterType)) {
+                return method.handle;
+            }
+        }
+        throw notFound("method", name + describe(firstParameterType, secondParameterType));
+    }
+
+    /** Returns the named reflectable method, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle method(String name, Class<?>... parameterTypes) {
+        for (ResolvedExecutable method : methodsNamed(name)) {
+            if (Arrays.equals(method.parameterTypes, parameterTypes)) {
+                return method.handle;
+            }
+        }
+        throw notFound("method", name + describe(parameterTypes));
+    }
+
+    /** Returns the reflectable no-arg constructor, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle constructor() {
+        for (ResolvedExecutable constructor : constructors()) {
+            if (constructor.parameterTypes.length == 0) {
+                return constructor.handle;
+            }
+        }
+        throw notFound("constructor", "()");
+    }
+
+    /** Returns a reflectable constructor, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle constructor(Class<?> parameterType) {
+        for (ResolvedExecutable constructor : constructors()) {
+            if (constructor.hasParameters(parameterType)) {
+                return constructor.handle;
+            }
+        }
+        throw notFound("constructor", describe(parameterType));
+    }
+
+    /** Returns a reflectable constructor, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle constructor(Class<?> firstParameterType, Class<?> secondParameterType) {
+        for (ResolvedExecutable constructor : constructors()) {
+            if (constructor.hasParameters(firstParameterType, secondParameterType)) {
+                return constructor.handle;
+            }
+        }
+        throw notFound("constructor", describe(firstParameterType, secondParameterType));
+    }
+
+    /** Returns a reflectable constructor, throwing {@link IllegalArgumentException} if none exists. */
+    public MethodHandle constructor(Class<?>... parameterTypes) {
+        for (ResolvedExecutable constructor : constructors()) {
+            if (Arrays.equals(constructor.parameterTypes, parameterTypes)) {
+                return constructor.handle;
+            }
+        }
+        throw notFound("constructor", describe(parameterTypes));
+    }
+
+    private Optional<MethodHandle> resolveField(String name, boolean write) {
+        Field field = registered.fields.get(name);
+        if (field == null || (write && Modifier.isFinal(field.getModifiers()))) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(write ? lookup.unreflectSetter(field) : lookup.unreflectGetter(field));
+        } catch (IllegalAccessException e) {
+            // not accessible to the caller
+            return Optional.empty();
+        }
+    }
+
+    private ResolvedExecutable[] methodsNamed(String name) {
+        ResolvedExecutable[] resolved = methods.get(name);
+        if (resolved == null) {
+            resolved = methods.computeIfAbsent(name,
+                    k -> resolveExecutables(registered.methods.getOrDefault(k, Collections.emptyList())));
+        }
+        return resolved;
+    }
+
+    private ResolvedExecutable[] constructors() {
+        ResolvedExecutable[] resolved = constructors;
+        if (resolved == null) {
+            // racing threads resolve the same handles, so either result may be kept
+            resolved = resolveExecutables(registered.constructors);
+            constructors = resolved;
+        }
+        return resolved;
+    }
+
+    private ResolvedExecutable[] resolveExecutables(List<? extends Executable> executables) {
+        List<ResolvedExecutable> resolved = new ArrayList<>();
+        for (Executable executable : executables) {
+            try {
+                resolved.add(new ResolvedExecutable(executable, executable instanceof Constructor
+                        ? lookup.unreflectConstructor((Constructor<?>) executable)
+                        : lookup.unreflect((Method) executable)));
+            } catch (IllegalAccessException e) {
+                // not accessible to the caller
+            }
+        }
+        return resolved.toArray(NONE);
+    }
+
+    private IllegalArgumentException notFound(String kind, String member) {
+        return new IllegalArgumentException(String.format(
+                "No accessible reflectable %s %s registered for %s", kind, member, type.getName()));
+    }
+
+    private static String describe(Class<?>... parameterTypes) {
+        return Arrays.stream(parameterTypes).map(Class::getName).collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Field field : type.getDeclaredFields()) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        try {
+            return type.getField(name);
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the executable matching a configured name and parameter type names. Configured names may carry generic
+     * type arguments and use canonical rather than binary names, so candidates are compared after erasure.
+     */
+    private static Executable findExecutable(Class<?> type, String name, List<String> parameterTypes) {
+        List<Executable> candidates = new ArrayList<>();
+        if (name.equals("<init>")) {
+            candidates.addAll(Arrays.asList(type.getDeclaredConstructors()));
+        } else {
+            candidates.addAll(Arrays.asList(type.getDeclaredMethods()));
+            candidates.addAll(Arrays.asList(type.getMethods()));
+            candidates.removeIf(candidate -> !candidate.getName().equals(name));
+        }
+        candidates.removeIf(candidate -> candidate.getParameterCount() != parameterTypes.size());
+
+        List<String> erasedParameterTypes = parameterTypes.stream()
+                .map(ReflectableHandles::erasure)
+                .collect(Collectors.toList());
+        for (Executable candidate : candidates) {
+            List<String> candidateParameterTypes = Arrays.stream(candidate.getParameterTypes())
+                    .map(parameterType -> parameterType.getTypeName().replace('$', '.'))
+                    .collect(Collectors.toList());
+            if (candidateParameterTypes.equals(erasedParameterTypes)) {
+                return candidate;
+            }
+        }
+        // type variables cannot be matched by name, so accept an unambiguous overload
+        return candidates.size() == 1 ? candidates.get(0) : null;
+    }
+
+    private static String erasure(String typeName) {
+        StringBuilder erased = new StringBuilder();
+        int depth = 0;
+        for (char c : typeName.toCharArray()) {
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                erased.append(c);
+            }
+        }
+        return erased.toString().replace('$', '.');
+    }
+
+    /** The members of a class registered in the reflection configuration, found without changing their access. */
+    private static final class RegisteredMembers {
+        private final Map<String, Field> fields;
+        private final Map<String, List<Method>> methods;
+        private final List<Constructor<?>> constructors;
+
+        private RegisteredMembers(
+                Map<String, Field> fields, Map<String, List<Method>> methods, List<Constructor<?>> constructors) {
+            this.fields = fields;
+            this.methods = methods;
+            this.constructors = constructors;
+        }
+
+        private static RegisteredMembers find(Class<?> type) {
+            Set<Field> fields = new LinkedHashSet<>();
+            Set<Executable> executables = new LinkedHashSet<>();
+
+            for (JsonNode entry : ReflectionConfigIndex.forClassLoader(type.getClassLoader()).entriesFor(type)) {
+                if (entry.path("allPublicFields").asBoolean()) {
+                    fields.addAll(Arrays.asList(type.getFields()));
+                }
+                if (entry.path("allDeclaredFields").asBoolean()) {
+                    fields.addAll(Arrays.asList(type.getDeclaredFields()));
+                }
+                if (entry.path("allPublicMethods").asBoolean()) {
+                    executables.addAll(Arrays.asList(type.getMethods()));
+                }
+                if (entry.path("allDeclaredMethods").asBoolean()) {
+                    executables.addAll(Arrays.asList(type.getDeclaredMethods()));
+                }
+                if (entry.path("allPublicConstructors").asBoolean()) {
+                    executables.addAll(Arrays.asList(type.getConstructors()));
+                }
+                if (entry.path("allDeclaredConstructors").asBoolean()) {
+                    executables.addAll(Arrays.asList(type.getDeclaredConstructors()));
+                }
+                for (JsonNode field : entry.path("fields")) {
+                    Field resolved = findField(type, field.path("name").asText());
+                    if (resolved != null) {
+                        fields.add(resolved);
+                    }
+                }
+                for (JsonNode method : entry.path("methods")) {
+                    List<String> parameterTypes = new ArrayList<>();
+                    method.path("parameterTypes").forEach(parameterType -> parameterTypes.add(parameterType.asText()));
+                    Executable resolved = findExecutable(type, method.path("name").asText(), parameterTypes);
+                    if (resolved != null) {
+                        executables.add(resolved);
+                    }
+                }
+            }
+
+            Map<String, Field> fieldsByName = new HashMap<>();
+            fields.forEach(field -> fieldsByName.putIfAbsent(field.getName(), field));
+            Map<String, List<Method>> methodsByName = new HashMap<>();
+            List<Constructor<?>> constructors = new ArrayList<>();
+            for (Executable executable : executables) {
+                if (executable instanceof Constructor) {
+                    constructors.add((Constructor<?>) executable);
+                } else {
+                    methodsByName.computeIfAbsent(executable.getName(), k -> new ArrayList<>())
+                            .add((Method) executable);
+                }
+            }
+            return new RegisteredMembers(fieldsByName, methodsByName, constructors);
+        }
+    }
+
+    private static final class ResolvedExecutable {
+        private final Class<?>[] parameterTypes;
+        private final MethodHandle handle;
+
+        private ResolvedExecutable(Executable executable, MethodHandle handle) {
+            this.parameterTypes = executable.getParameterTypes();
+            this.handle = handle;
+        }
+
+        private boolean hasParameters(Class<?> parameterType) {
+            return parameterTypes.length == 1 && parameterTypes[0] == parameterType;
+        }
+
+        private boolean hasParameters(Class<?> firstParameterType, Class<?> secondParameterType) {
+            return parameterTypes.length == 2
+                    && parameterTypes[0] == firstParameterType
+                    && parameterTypes[1] == secondParameterType;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Index of the reflection configuration entries generated by the graal annotation processor, read once per class
+ * loader from every {@value #PATH} resource visible to it.
+ */
+final class ReflectionConfigIndex {
+
+    static final String PATH = "META-INF/graal/reflection-config.json";
+
+    private static final Map<ClassLoader, ReflectionConfigIndex> INDEXES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, List<JsonNode>> entries;
+
+    private ReflectionConfigIndex(Map<String, List<JsonNode>> entries) {
+        this.entries = entries;
+    }
+
+    static ReflectionConfigIndex forClassLoader(ClassLoader classLoader) {
+        return INDEXES.computeIfAbsent(classLoader, ReflectionConfigIndex::load);
+    }
+
+    /** Returns every configuration entry naming the given class by either its binary or canonical name. */
+    List<JsonNode> entriesFor(Class<?> type) {
+        List<JsonNode> result = new ArrayList<>(entries.getOrDefault(type.getName(), Collections.emptyList()));
+        String canonicalName = type.getCanonicalName();
+        if (canonicalName != null && !canonicalName.equals(type.getName())) {
+            result.addAll(entries.getOrDefault(canonicalName, Collections.emptyList()));
+        }
+        return result;
+    }
+
+    private static ReflectionConfigIndex load(ClassLoader classLoader) {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, List<JsonNode>> entries = new HashMap<>();
+        try {
+            Enumeration<URL> resources = classLoader == null
+                    ? ClassLoader.getSystemResources(PATH)
+                    : classLoader.getResources(PATH);
+            while (resources.hasMoreElements()) {
+                try (InputStream is = resources.nextElement().openStream()) {
+                    for (JsonNode entry : mapper.readTree(is)) {
+                        entries.computeIfAbsent(entry.path("name").asText(), k -> new ArrayList<>()).add(entry);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + PATH, e);
+        }
+        return new ReflectionConfigIndex(entries);
+    }
+}
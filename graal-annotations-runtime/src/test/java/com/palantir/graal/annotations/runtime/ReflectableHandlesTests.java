@@ -0,0 +1,109 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.graal.annotations.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public final class ReflectableHandlesTests {
+
+    @Test
+    public void testSpecificMembers() throws Throwable {
+        ReflectableHandles handles = ReflectableHandles.of(Target.class, MethodHandles.lookup());
+
+        Target target = (Target) handles.constructor(String.class).invoke("foo");
+        assertThat((String) handles.getter("value").invoke(target)).isEqualTo("foo");
+
+        handles.setter("id").invoke(target, 42);
+        assertThat((int) handles.getter("id").invoke(target)).isEqualTo(42);
+
+        assertThat((String) handles.method("describe", List.class).invoke(target, Arrays.asList("a", "b")))
+                .isEqualTo("foo:42:[a, b]");
+    }
+
+    @Test
+    public void testFinalFieldIsNotWritable() {
+        assertThatThrownBy(() -> ReflectableHandles.of(Target.class, MethodHandles.lookup()).setter("value"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("value");
+    }
+
+    @Test
+    public void testCachesHandlesPerLookupClass() {
+        ReflectableHandles handles = ReflectableHandles.of(Target.class, MethodHandles.lookup());
+
+        assertThat(ReflectableHandles.of(Target.class, MethodHandles.lookup())).isSameAs(handles);
+        assertThat(handles.getter("value")).isSameAs(handles.getter("value"));
+        assertThat(handles.method("describe", List.class)).isSameAs(handles.method("describe", List.class));
+        assertThat(ReflectableHandles.of(Target.class, MethodHandles.publicLookup())).isNotSameAs(handles);
+    }
+
+    @Test
+    public void testUnregisteredMembers() {
+        ReflectableHandles handles = ReflectableHandles.of(Target.class, MethodHandles.lookup());
+
+        assertThatThrownBy(() -> handles.getter("missing")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> handles.method("missing")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> handles.constructor()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testSummaryMembers() throws Throwable {
+        ReflectableHandles handles = ReflectableHandles.of(Summary.class, MethodHandles.lookup());
+
+        Summary summary = (Summary) handles.constructor().invoke();
+        handles.setter("count").invoke(summary, 3);
+        assertThat((int) handles.getter("count").invoke(summary)).isEqualTo(3);
+        assertThatThrownBy(() -> handles.method("toString")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testOnlyResolvesMembersAccessibleToCaller() throws Throwable {
+        ReflectableHandles handles = ReflectableHandles.of(Target.class, MethodHandles.publicLookup());
+
+        assertThatThrownBy(() -> handles.getter("value")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> handles.method("describe", List.class)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> handles.constructor(String.class)).isInstanceOf(IllegalArgumentException.class);
+
+        Summary summary = (Summary) ReflectableHandles.of(Summary.class, MethodHandles.publicLookup())
+                .constructor()
+                .invoke();
+        assertThat(summary).isNotNull();
+    }
+
+    static final class Target {
+        private final String value;
+        private int id;
+
+        private Target(String value) {
+            this.value = value;
+        }
+
+        private String describe(List<String> items) {
+            return value + ":" + id + ":" + items;
+        }
+    }
+
+    public static final class Summary {
+        public int count;
+    }
+}